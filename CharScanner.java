@@ -0,0 +1,59 @@
+/**
+ * The CharScanner interface finds the end of the runs of characters that the
+ * tokenizer steps over: whitespace, the digits of an integer constant, the
+ * letters of a word and the text of a comment or string constant.
+ * Every method looks at text[from] up to text[to - 1] and returns to when the
+ * run reaches it.
+ * SCALAR looks at one character at a time. VectorCharScanner, in the vector
+ * folder, compares a whole vector of characters at once with the Vector API;
+ * preferred() returns it when the jdk.incubator.vector module is loaded
+ * (java --add-modules jdk.incubator.vector) and the class was compiled, and
+ * SCALAR otherwise.
+ */
+interface CharScanner {
+
+    CharScanner SCALAR = new ScalarCharScanner();
+
+    /**
+     * Returns the index of the first character that is not whitespace.
+     */
+    int skipWhitespace(char[] text, int from, int to);
+
+    /**
+     * Returns the index of the first character that is not a digit.
+     */
+    int skipDigits(char[] text, int from, int to);
+
+    /**
+     * Returns the index of the first character that is not a letter, a digit or _.
+     */
+    int skipWordChars(char[] text, int from, int to);
+
+    /**
+     * Returns the index of the first occurrence of c.
+     */
+    int indexOf(char[] text, char c, int from, int to);
+
+    /**
+     * Returns the Vector API scanner, or null if the jdk.incubator.vector module
+     * is not loaded or VectorCharScanner was not compiled.
+     */
+    static CharScanner vector() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (CharScanner) Class.forName("VectorCharScanner").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the Vector API scanner if it is available, SCALAR otherwise.
+     */
+    static CharScanner preferred() {
+        CharScanner vector = vector();
+        return (vector != null) ? vector : SCALAR;
+    }
+}
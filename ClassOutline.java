@@ -0,0 +1,177 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ClassOutline class is the result of CompilationEngine.compileClassOutline.
+ * It holds the classVarDecs of a class and the signature of every subroutine
+ * together with the token range of its body, so bodies can be compiled later,
+ * one at a time, when they are needed.
+ * An outline shares the tokenizer it was built from and is not thread-safe.
+ */
+public class ClassOutline {
+
+    /**
+     * A static or field declaration of the class.
+     */
+    public static class ClassVarDec {
+        private final String kind;
+        private final String type;
+        private final List<String> names;
+
+        public ClassVarDec(String kind, String type, List<String> names) {
+            this.kind = kind;
+            this.type = type;
+            this.names = Collections.unmodifiableList(names);
+        }
+
+        /**
+         * Returns static or field.
+         */
+        public String getKind() {
+            return kind;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Returns the declared variable names, in source order.
+         */
+        public List<String> getNames() {
+            return names;
+        }
+    }
+
+    /**
+     * A parameter of a subroutine.
+     */
+    public static class Parameter {
+        private final String type;
+        private final String name;
+
+        public Parameter(String type, String name) {
+            this.type = type;
+            this.name = name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * The signature of a constructor, function or method and the token range of
+     * its body.
+     */
+    public static class Subroutine {
+        private final String kind;
+        private final String returnType;
+        private final String name;
+        private final List<Parameter> parameters;
+        private final int bodyStart;
+        private final int bodyEnd;
+
+        public Subroutine(String kind, String returnType, String name, List<Parameter> parameters, int bodyStart,
+                int bodyEnd) {
+            this.kind = kind;
+            this.returnType = returnType;
+            this.name = name;
+            this.parameters = Collections.unmodifiableList(parameters);
+            this.bodyStart = bodyStart;
+            this.bodyEnd = bodyEnd;
+        }
+
+        /**
+         * Returns constructor, function or method.
+         */
+        public String getKind() {
+            return kind;
+        }
+
+        public String getReturnType() {
+            return returnType;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the parameters, in source order.
+         */
+        public List<Parameter> getParameters() {
+            return parameters;
+        }
+
+        /**
+         * Returns the index of the body's opening { in the token list.
+         */
+        public int getBodyStart() {
+            return bodyStart;
+        }
+
+        /**
+         * Returns the index of the body's closing } in the token list.
+         */
+        public int getBodyEnd() {
+            return bodyEnd;
+        }
+    }
+
+    private final JackTokenizer tokenizer;
+    private final String className;
+    private final List<ClassVarDec> classVarDecs;
+    private final List<Subroutine> subroutines;
+
+    public ClassOutline(JackTokenizer tokenizer, String className, List<ClassVarDec> classVarDecs,
+            List<Subroutine> subroutines) {
+        this.tokenizer = tokenizer;
+        this.className = className;
+        this.classVarDecs = Collections.unmodifiableList(classVarDecs);
+        this.subroutines = Collections.unmodifiableList(subroutines);
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Returns the static and field declarations of the class, in source order.
+     */
+    public List<ClassVarDec> getClassVarDecs() {
+        return classVarDecs;
+    }
+
+    /**
+     * Returns the subroutines of the class, in source order.
+     */
+    public List<Subroutine> getSubroutines() {
+        return subroutines;
+    }
+
+    /**
+     * Compiles the body of the given subroutine and appends its subroutineBody
+     * xml to out. The xml is indented as in a full compileClass run, so it is
+     * the same text as the body's part of the full xml.
+     * @param subroutine one of the subroutines of this outline
+     * @param out        destination of the xml
+     * @throws IOException if appending to out fails
+     */
+    public void compileBody(Subroutine subroutine, Appendable out) throws IOException {
+        CompilationEngine compile = new CompilationEngine(tokenizer, out);
+        // class and subroutineDec enclose the body
+        compile.setIndentation(2);
+        try {
+            compile.compileSubroutineBody(subroutine);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -1,17 +1,51 @@
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 public class CompilationEngine {
 
-    private BufferedWriter writer;
+    private Appendable writer;
     private JackTokenizer token;
     private int indentation;
+    // receives the locals and statements of the body being compiled, if set
+    private LocalSlotAllocator liveness;
+    // receives every classVarDec and subroutineDec compiled by compileClass, if set
+    private MemberListener members;
+    // the output of the class while a member is written to its own buffer
+    private Appendable classWriter;
+    // index of the last token consumed by process
+    private int lastToken;
     private List<String> op = Arrays.asList("+", "-", "*", "/", "&", "|", "<", ">", "=");
 
+    /**
+     * Receives the classVarDec and subroutineDec elements compiled by
+     * compileClass, after they have been written to the output.
+     */
+    interface MemberListener {
+        /**
+         * @param kind  classVarDec or subroutineDec
+         * @param first index of the member's first token
+         * @param last  index of the member's last token
+         * @param xml   the xml of the member
+         */
+        void memberCompiled(String kind, int first, int last, String xml);
+    }
+
+    /**
+     * The steps of the non recursive expression parser (see parseExpression).
+     */
+    private enum Step {
+        START_EXPRESSION, START_TERM, END_TERM, AFTER_OPERAND, CLOSE_BRACKET, CLOSE_PARENTHESIS, AFTER_ARGUMENT, DONE
+    }
+
     /**
      * constructor of the CompilationEngine.
      * Creates a new compilation engine with the given input and ouput
@@ -22,8 +56,8 @@ public class CompilationEngine {
      */
     public CompilationEngine(File InputFile, File outputFile) {
         try {
-            // Create a FileWriter that writes to the specified file
-            FileWriter fileWriter = new FileWriter(outputFile, true);
+            // Create a FileWriter that writes UTF-8 to the specified file
+            FileWriter fileWriter = new FileWriter(outputFile, StandardCharsets.UTF_8, true);
             // Wrap the FileWriter in a BufferedWriter for efficient writing
             writer = new BufferedWriter(fileWriter);
             // construct a tokenizer
@@ -36,52 +70,173 @@ public class CompilationEngine {
         }
     }
 
+    /**
+     * constructor of the CompilationEngine.
+     * Creates a new compilation engine reading the tokens of the given tokenizer
+     * and writing to the given output (for example a StringBuilder or a Writer).
+     * The next routine called must be compileClass.
+     * 
+     * @param tokenizer tokenizer over the jack source
+     * @param output    destination of the xml
+     */
+    public CompilationEngine(JackTokenizer tokenizer, Appendable output) {
+        this.writer = output;
+        this.token = tokenizer;
+        this.indentation = 0;
+    }
+
+    /**
+     * Helper method:
+     * reports the locals and statements compiled from now on to the given
+     * allocator (see LocalSlotAllocator.allocate).
+     */
+    void setLiveness(LocalSlotAllocator liveness) {
+        this.liveness = liveness;
+    }
+
+    /**
+     * Helper method:
+     * sets the indentation level of the xml written from now on.
+     */
+    void setIndentation(int indentation) {
+        this.indentation = indentation;
+    }
+
+    /**
+     * Helper method:
+     * reports every classVarDec and subroutineDec compiled by compileClass from
+     * now on, with its token range and xml, to the given listener.
+     */
+    void setMemberListener(MemberListener members) {
+        this.members = members;
+    }
+
     /**
      * This method compiles a complete class
      */
     public void compileClass() {
+        this.compileClass(null, null);
+    }
+
+    /**
+     * This method compiles the outline of a class: the class, its classVarDec
+     * elements and the signature of every subroutineDec, and records the
+     * classVarDecs and the signatures.
+     * Subroutine bodies are skipped by matching their curly brackets, and can be
+     * compiled later with compileSubroutineBody(subroutine).
+     * 
+     * @return the outline of the class
+     */
+    public ClassOutline compileClassOutline() {
+        List<ClassOutline.ClassVarDec> classVarDecs = new ArrayList<>();
+        List<ClassOutline.Subroutine> subroutines = new ArrayList<>();
+        String className = this.compileClass(classVarDecs, subroutines);
+        return new ClassOutline(this.token, className, classVarDecs, subroutines);
+    }
+
+    /**
+     * Helper method:
+     * compiles a class. If outline is not null, the subroutine bodies are
+     * skipped and the subroutines are added to outline instead. If classVarDecs
+     * is not null, the classVarDecs are added to it.
+     * Returns the name of the class.
+     */
+    private String compileClass(List<ClassOutline.ClassVarDec> classVarDecs, List<ClassOutline.Subroutine> outline) {
+        String className = null;
         if (this.token.hasMoreTokens()) {
             this.token.advance();
             this.write_start("class");
             this.process(this.token.Keyword()); // class
+            className = this.token.Identifier();
             this.process(this.token.Identifier()); // name of class
             this.process("{"); // symbol
 
             // handling zero or more classVarDec elements
             while ((this.token.Keyword().equals("static")) || (this.token.Keyword().equals("field"))) {
 
-                this.compileClassVarDec();
+                int first = this.startMember();
+                ClassOutline.ClassVarDec classVarDec = this.compileClassVarDec();
+                if (classVarDecs != null) {
+                    classVarDecs.add(classVarDec);
+                }
+                this.endMember("classVarDec", first);
             }
             // handling zero or more subroutineDec elements
             while ((this.token.Keyword().equals("constructor")) || (this.token.Keyword().equals("function"))
                     || (this.token.Keyword().equals("method"))) {
-                this.compileSubroutine();
+                int first = this.startMember();
+                if (outline == null) {
+                    this.compileSubroutine();
+                } else {
+                    outline.add(this.compileSubroutineOutline());
+                }
+                this.endMember("subroutineDec", first);
             }
             this.process("}");// symbol
             this.write_end("class");
 
         }
+        return className;
+    }
+
+    /**
+     * Helper method:
+     * called before compileClass compiles a member. With a member listener, the
+     * member is written to a buffer of its own.
+     * Returns the index of the member's first token.
+     */
+    private int startMember() {
+        if (this.members != null) {
+            this.classWriter = this.writer;
+            this.writer = new StringBuilder();
+        }
+        return this.token.getPosition();
+    }
+
+    /**
+     * Helper method:
+     * called after compileClass compiled a member. Writes the member's buffer to
+     * the output of the class and reports the member to the member listener.
+     */
+    private void endMember(String kind, int first) {
+        if (this.members != null) {
+            String xml = this.writer.toString();
+            this.writer = this.classWriter;
+            try {
+                writer.append(xml);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.members.memberCompiled(kind, first, this.lastToken, xml);
+        }
     }
 
     /**
      * This method compiles a static variable delareation, or a field declaration.
+     * Returns its kind, type and variable names.
      */
-    public void compileClassVarDec() {
+    public ClassOutline.ClassVarDec compileClassVarDec() {
         this.write_start("classVarDec");
+        String kind = this.token.Keyword();
         this.process(this.token.Keyword()); // static ot field
         // handling type and varName:
+        String type = this.token.getToken();
         if (this.token.tokenType().equals(TokenType.Keyword)) {
             this.process(this.token.Keyword());
         } else if (this.token.tokenType().equals(TokenType.Identifier)) {
             this.process(this.token.Identifier());
         }
+        List<String> names = new ArrayList<>();
+        names.add(this.token.Identifier());
         this.process(this.token.Identifier());
         while (this.token.Symbol() == ',') {
             this.process(",");
+            names.add(this.token.Identifier());
             this.process(this.token.Identifier());
         }
         this.process(";");
         this.write_end("classVarDec");
+        return new ClassOutline.ClassVarDec(kind, type, names);
     }
 
     /**
@@ -89,41 +244,92 @@ public class CompilationEngine {
      */
     public void compileSubroutine() {
         this.write_start("subroutineDec");
+        this.compileSubroutineSignature(new ArrayList<>());
+        this.compileSubroutineBody();
+        this.write_end("subroutineDec");
+
+    }
+
+    /**
+     * This method compiles the signature of a method, function or constructor
+     * and skips its body.
+     * Returns the signature and the token range of the body.
+     */
+    public ClassOutline.Subroutine compileSubroutineOutline() {
+        this.write_start("subroutineDec");
+        List<ClassOutline.Parameter> parameters = new ArrayList<>();
+        String[] signature = this.compileSubroutineSignature(parameters);
+        int bodyStart = this.token.getPosition();
+        // skip the body by matching its curly brackets
+        int depth = 0;
+        while (true) {
+            if (this.token.tokenType().equals(TokenType.Symbol) && (this.token.Symbol() == '{')) {
+                depth++;
+            } else if (this.token.tokenType().equals(TokenType.Symbol) && (this.token.Symbol() == '}')) {
+                depth--;
+            }
+            if ((depth == 0) || (!this.token.hasMoreTokens())) {
+                break;
+            }
+            this.token.advance();
+        }
+        int bodyEnd = this.token.getPosition();
+        this.lastToken = bodyEnd;
+        this.token.advance();
+        this.write_end("subroutineDec");
+        return new ClassOutline.Subroutine(signature[0], signature[1], signature[2], parameters, bodyStart,
+                bodyEnd);
+    }
+
+    /**
+     * Helper method:
+     * compiles the kind, return type, name and parameter list of a subroutine.
+     * Returns the kind, return type and name, and adds the parameters to
+     * parameters.
+     */
+    private String[] compileSubroutineSignature(List<ClassOutline.Parameter> parameters) {
+        String[] signature = new String[3];
+        signature[0] = this.token.Keyword();
         this.process(this.token.Keyword()); // costructor or function or method
+        signature[1] = this.token.getToken();
         if (this.token.tokenType().equals(TokenType.Keyword)) {
             this.process(this.token.Keyword()); // void or int or char or boolean
         } else if (this.token.tokenType().equals(TokenType.Identifier)) {
             this.process(this.token.Identifier()); // className
         }
+        signature[2] = this.token.Identifier();
         this.process(this.token.Identifier()); // subroutinName
         this.process("(");
-        this.compileParaeterList();
+        parameters.addAll(this.compileParaeterList());
         this.process(")");
-        this.compileSubroutineBody();
-        this.write_end("subroutineDec");
-
+        return signature;
     }
 
     /**
      * This method compiles a (possibly empty) parameter list.
      * Does not handle the enclosing parentheses tokens ( and ).
+     * Returns the type and name of every parameter.
      */
-    public void compileParaeterList() {
+    public List<ClassOutline.Parameter> compileParaeterList() {
+        List<ClassOutline.Parameter> parameters = new ArrayList<>();
         this.write_start("parameterList");
         while (!this.token.tokenType().equals(TokenType.Symbol)) {
 
             // handling type and varName:
+            String type = this.token.getToken();
             if (this.token.tokenType().equals(TokenType.Keyword)) {
                 this.process(this.token.Keyword());
             } else if (this.token.tokenType().equals(TokenType.Identifier)) {
                 this.process(this.token.Identifier());
             }
+            parameters.add(new ClassOutline.Parameter(type, this.token.Identifier()));
             this.process(this.token.Identifier());
             if (this.token.Symbol() == ',') {
                 this.process(",");
             }
         }
         this.write_end("parameterList");
+        return parameters;
     }
 
     /**
@@ -141,6 +347,18 @@ public class CompilationEngine {
         this.write_end("subroutineBody");
     }
 
+    /**
+     * This method compiles the body of a subroutine skipped by
+     * compileClassOutline.
+     * The current token is left unchanged.
+     */
+    public void compileSubroutineBody(ClassOutline.Subroutine subroutine) {
+        int position = this.token.getPosition();
+        this.token.setPosition(subroutine.getBodyStart());
+        this.compileSubroutineBody();
+        this.token.setPosition(position);
+    }
+
     /**
      * This method compiles a var declaration.
      */
@@ -153,9 +371,11 @@ public class CompilationEngine {
         } else if (this.token.tokenType().equals(TokenType.Identifier)) {
             this.process(this.token.Identifier());
         }
+        this.declareLocal(this.token.Identifier());
         this.process(this.token.Identifier());
         while (this.token.Symbol() == ',') {
             this.process(",");
+            this.declareLocal(this.token.Identifier());
             this.process(this.token.Identifier());
         }
         this.process(";");
@@ -168,6 +388,7 @@ public class CompilationEngine {
      */
     public void compileStatements() {
         this.write_start("statements");
+        this.openStatementList();
         while (this.token.tokenType().equals(TokenType.Keyword)) {
             if (this.token.Keyword().equals("let")) {
                 this.compileLet();
@@ -181,6 +402,7 @@ public class CompilationEngine {
                 this.compileReturn();
             }
         }
+        this.closeStatementList();
         this.write_end("statements");
     }
 
@@ -189,17 +411,24 @@ public class CompilationEngine {
      */
     public void compileLet() {
         this.write_start("letStatement");
+        this.openStatement("let");
         this.process(this.token.Keyword()); // let
+        String varName = this.token.Identifier();
         this.process(this.token.Identifier());// varName
         // ([expression])?
         if (this.token.Symbol() == '[') {
+            // writing an array entry reads the array variable
+            this.useLocal(varName);
             this.process("[");
             this.compileExpression();
             this.process("]");
+        } else {
+            this.defineLocal(varName);
         }
         this.process("=");
         this.compileExpression();
         this.process(";");
+        this.closeStatement();
         this.write_end("letStatement");
 
     }
@@ -210,6 +439,7 @@ public class CompilationEngine {
      */
     public void compileIf() {
         this.write_start("ifStatement");
+        this.openStatement("if");
         this.process(this.token.Keyword()); // if
         // (expression)
         this.process("(");
@@ -228,6 +458,7 @@ public class CompilationEngine {
             this.compileStatements();
             this.process("}");
         }
+        this.closeStatement();
         this.write_end("ifStatement");
     }
 
@@ -236,6 +467,7 @@ public class CompilationEngine {
      */
     public void compileWhile() {
         this.write_start("whileStatement");
+        this.openStatement("while");
         this.process("while"); // while
         // (expression)
         this.process("(");
@@ -245,6 +477,7 @@ public class CompilationEngine {
         this.process("{");
         this.compileStatements();
         this.process("}");
+        this.closeStatement();
         this.write_end("whileStatement");
 
     }
@@ -254,8 +487,10 @@ public class CompilationEngine {
      */
     public void compileDo() {
         this.write_start("doStatement");
+        this.openStatement("do");
         this.process(this.token.Keyword()); // do
         // subroutineCall
+        String name = this.token.Identifier();
         this.process(this.token.Identifier()); // subroutineName or (className|varName)
         // ( expressionList )
         if ((this.token.tokenType().equals(TokenType.Symbol)) && (this.token.Symbol() == '(')) {
@@ -264,6 +499,7 @@ public class CompilationEngine {
             this.process(")");
         } else {
             // . subroutineName ( expressionList )
+            this.useLocal(name);
             this.process(".");
             this.process(this.token.Identifier()); // subroutineName
             this.process("(");
@@ -273,6 +509,7 @@ public class CompilationEngine {
 
         // back to doStatement
         this.process(";"); // synbol
+        this.closeStatement();
         this.write_end("doStatement");
     }
 
@@ -281,6 +518,7 @@ public class CompilationEngine {
      */
     public void compileReturn() {
         this.write_start("returnStatement");
+        this.openStatement("return");
         this.process(this.token.Keyword()); // return
         // expression?
         if ((!this.token.tokenType().equals(TokenType.Symbol))
@@ -288,6 +526,7 @@ public class CompilationEngine {
             this.compileExpression();
         }
         this.process("" + this.token.Symbol()); // ;
+        this.closeStatement();
         this.write_end("returnStatement");
     }
 
@@ -295,13 +534,7 @@ public class CompilationEngine {
      * This method compiles an expression.
      */
     public void compileExpression() {
-        this.write_start("expression");
-        this.compileTerm();
-        while ((this.token.tokenType().equals(TokenType.Symbol)) && (op.contains("" + this.token.Symbol()))) {
-            this.process("" + this.token.Symbol());
-            this.compileTerm();
-        }
-        this.write_end("expression");
+        this.parseExpression(Step.START_EXPRESSION);
     }
 
     /**
@@ -311,6 +544,81 @@ public class CompilationEngine {
      * 
      */
     public void compileTerm() {
+        this.parseExpression(Step.START_TERM);
+    }
+
+    /**
+     * Helper method:
+     * parses an expression (or a single term) without recursion.
+     * Every nested expression - inside ( ), [ ], a subroutine call's argument
+     * list or after a unary operator - pushes the step that must run once it
+     * is done onto an explicit stack, so the java call stack stays flat no
+     * matter how deep the expression is nested.
+     * The output is the same as the grammar's recursive term/expression
+     * structure.
+     */
+    private void parseExpression(Step first) {
+        ArrayDeque<Step> pending = new ArrayDeque<>();
+        pending.push(Step.DONE);
+        Step step = first;
+        while (step != Step.DONE) {
+            switch (step) {
+                case START_EXPRESSION:
+                    this.write_start("expression");
+                    pending.push(Step.AFTER_OPERAND);
+                    step = Step.START_TERM;
+                    break;
+                case START_TERM:
+                    step = this.startTerm(pending);
+                    break;
+                case END_TERM:
+                    this.write_end("term");
+                    step = pending.pop();
+                    break;
+                case AFTER_OPERAND:
+                    // op term
+                    if ((this.token.tokenType().equals(TokenType.Symbol)) && (op.contains("" + this.token.Symbol()))) {
+                        this.process("" + this.token.Symbol());
+                        pending.push(Step.AFTER_OPERAND);
+                        step = Step.START_TERM;
+                    } else {
+                        this.write_end("expression");
+                        step = pending.pop();
+                    }
+                    break;
+                case CLOSE_BRACKET:
+                    this.process("]");
+                    step = Step.END_TERM;
+                    break;
+                case CLOSE_PARENTHESIS:
+                    this.process(")");
+                    step = Step.END_TERM;
+                    break;
+                case AFTER_ARGUMENT:
+                    // (, expression)*
+                    if ((this.token.tokenType().equals(TokenType.Symbol)) && (this.token.Symbol() == ',')) {
+                        this.process(",");
+                        pending.push(Step.AFTER_ARGUMENT);
+                        step = Step.START_EXPRESSION;
+                    } else {
+                        this.write_end("expressionList");
+                        this.process(")");
+                        step = Step.END_TERM;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected parser step: " + step);
+            }
+        }
+    }
+
+    /**
+     * Helper method:
+     * writes the opening of a term and its leading tokens.
+     * Returns the next step, after pushing whatever has to happen once a nested
+     * expression or term is done.
+     */
+    private Step startTerm(ArrayDeque<Step> pending) {
         this.write_start("term");
         if (this.token.tokenType().equals(TokenType.IntegerConstant)) {
             process("" + this.token.IntVal());
@@ -319,35 +627,56 @@ public class CompilationEngine {
         } else if (this.token.tokenType().equals(TokenType.Keyword)) {
             process(this.token.Keyword());
         } else if (this.token.tokenType().equals(TokenType.Identifier)) {
+            String name = this.token.Identifier();
             process(this.token.Identifier());
+            // varName, varName[ or (className|varName). - not subroutineName(
+            if (!((this.token.tokenType().equals(TokenType.Symbol)) && (this.token.Symbol() == '('))) {
+                this.useLocal(name);
+            }
             if ((this.token.tokenType().equals(TokenType.Symbol)) && (this.token.Symbol() == '[')) {
                 process("[");
-                compileExpression();
-                process("]");
+                pending.push(Step.CLOSE_BRACKET);
+                return Step.START_EXPRESSION;
             }
             // subroutineCall:
             else if ((this.token.tokenType().equals(TokenType.Symbol)) && (this.token.Symbol() == '(')) {
                 this.process("(");
-                this.compileExpressionList();
-                this.process(")");
+                return this.startArguments(pending);
             } else if ((this.token.tokenType().equals(TokenType.Symbol)) && (this.token.Symbol() == '.')) {
                 this.process(".");
                 this.process(this.token.Identifier()); // subroutineName
                 this.process("(");
-                this.compileExpressionList();
-                this.process(")");
+                return this.startArguments(pending);
             }
         } else if (this.token.tokenType().equals(TokenType.Symbol)) {
             if (this.token.Symbol() == '(') {
                 process("(");
-                compileExpression();
-                process(")");
+                pending.push(Step.CLOSE_PARENTHESIS);
+                return Step.START_EXPRESSION;
             } else if ((this.token.Symbol() == '-') || (this.token.Symbol() == '~')) {
                 process("" + this.token.Symbol());
-                compileTerm();
+                pending.push(Step.END_TERM);
+                return Step.START_TERM;
             }
         }
-        this.write_end("term");
+        return Step.END_TERM;
+    }
+
+    /**
+     * Helper method:
+     * opens the expressionList of a subroutine call inside a term.
+     * The closing ) is handled by AFTER_ARGUMENT, or here if the list is empty.
+     */
+    private Step startArguments(ArrayDeque<Step> pending) {
+        this.write_start("expressionList");
+        // if next token is ')' , there is no expression list
+        if ((this.token.tokenType().equals(TokenType.Symbol)) && (this.token.Symbol() == ')')) {
+            this.write_end("expressionList");
+            this.process(")");
+            return Step.END_TERM;
+        }
+        pending.push(Step.AFTER_ARGUMENT);
+        return Step.START_EXPRESSION;
     }
 
     /**
@@ -400,6 +729,7 @@ public class CompilationEngine {
         // } else {
         // System.out.println("syntax error");
         // }
+        this.lastToken = this.token.getPosition();
         this.token.advance();
     }
 
@@ -442,16 +772,92 @@ public class CompilationEngine {
         this.write_end("tokens");
     }
 
+    /**
+     * Helper method:
+     * reports a declared local variable to the liveness allocator, if any.
+     */
+    private void declareLocal(String name) {
+        if (this.liveness != null) {
+            this.liveness.declare(name);
+        }
+    }
+
+    /**
+     * Helper method:
+     * reports the start of a statement list to the liveness allocator, if any.
+     */
+    private void openStatementList() {
+        if (this.liveness != null) {
+            this.liveness.openStatementList();
+        }
+    }
+
+    /**
+     * Helper method:
+     * reports the end of the current statement list to the liveness allocator,
+     * if any.
+     */
+    private void closeStatementList() {
+        if (this.liveness != null) {
+            this.liveness.closeStatementList();
+        }
+    }
+
+    /**
+     * Helper method:
+     * reports the start of a let, if, while, do or return statement to the
+     * liveness allocator, if any.
+     */
+    private void openStatement(String keyword) {
+        if (this.liveness != null) {
+            this.liveness.openStatement(keyword);
+        }
+    }
+
+    /**
+     * Helper method:
+     * reports the end of the current statement to the liveness allocator, if
+     * any.
+     */
+    private void closeStatement() {
+        if (this.liveness != null) {
+            this.liveness.closeStatement();
+        }
+    }
+
+    /**
+     * Helper method:
+     * reports the variable written by the current let statement to the liveness
+     * allocator, if any.
+     */
+    private void defineLocal(String name) {
+        if (this.liveness != null) {
+            this.liveness.define(name);
+        }
+    }
+
+    /**
+     * Helper method:
+     * reports a variable read by the current statement to the liveness
+     * allocator, if any.
+     */
+    private void useLocal(String name) {
+        if (this.liveness != null) {
+            this.liveness.use(name);
+        }
+    }
+
     /**
      * Helper method:
      * write the first line in every compilexxx, and increament the indentation
+     * A failure of the output is thrown as an UncheckedIOException.
      */
     public void write_start(String str) {
         String start = "    ".repeat(this.indentation) + "<" + str + ">\n";
         try {
-            writer.write(start);
+            writer.append(start);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException(e);
         }
         this.indentation++;
     }
@@ -464,9 +870,9 @@ public class CompilationEngine {
         this.indentation--;
         String end = "    ".repeat(this.indentation) + "</" + str + ">\n";
         try {
-            writer.write(end);
+            writer.append(end);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -477,9 +883,9 @@ public class CompilationEngine {
     public void write_token(String type_str, String str) {
         String line = "  ".repeat(this.indentation) + "<" + type_str + "> " + str + " </" + type_str + ">\n";
         try {
-            writer.write(line);
+            writer.append(line);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -506,8 +912,8 @@ public class CompilationEngine {
 
     public void close() {
         try {
-            if (writer != null) {
-                writer.close();
+            if (writer instanceof Closeable) {
+                ((Closeable) writer).close();
             }
         } catch (IOException e) {
             e.printStackTrace();
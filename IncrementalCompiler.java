@@ -0,0 +1,251 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The IncrementalCompiler class keeps the token list and the xml of a Jack class
+ * between edits of its source.
+ * An edit that stays inside a single classVarDec or subroutineDec re-tokenizes
+ * and re-compiles only that declaration; the tokens and xml of the other
+ * declarations are reused. Any other edit compiles the whole class again.
+ * An IncrementalCompiler is not thread-safe.
+ */
+public class IncrementalCompiler {
+
+    /**
+     * A classVarDec or subroutineDec of the class: its token range and its xml.
+     */
+    private static class Member {
+        private final String kind;
+        private int first;
+        private int last;
+        private String xml;
+
+        private Member(String kind, int first, int last, String xml) {
+            this.kind = kind;
+            this.first = first;
+            this.last = last;
+            this.xml = xml;
+        }
+    }
+
+    private String source;
+    private JackTokenizer tokenizer;
+    private List<Member> members;
+    private String header;
+    private String footer;
+
+    /**
+     * Constructs an IncrementalCompiler and compiles the given Jack source.
+     * @param source the Jack source code of a class
+     */
+    public IncrementalCompiler(CharSequence source) {
+        this.source = source.toString();
+        compileAll();
+    }
+
+    /**
+     * Replaces the source from start (inclusive) to end (exclusive) with text and
+     * brings the token list and the xml up to date.
+     * @param start offset of the first replaced character
+     * @param end   offset of the character after the last replaced character
+     * @param text  the new text
+     * @return true if only the edited declaration was compiled again, false if
+     *         the whole class was
+     * @throws IllegalArgumentException unless 0 <= start <= end <= the length of
+     *                                  the source
+     */
+    public boolean edit(int start, int end, CharSequence text) {
+        if ((start < 0) || (start > end) || (end > source.length())) {
+            throw new IllegalArgumentException(
+                    "Edit " + start + ".." + end + " out of the source of length " + source.length());
+        }
+        String newSource = source.substring(0, start) + text + source.substring(end);
+        int shift = text.length() - (end - start);
+        Member member = findEditedMember(start, end);
+        if (member == null) {
+            source = newSource;
+            compileAll();
+            return false;
+        }
+
+        // re-tokenize the declaration only, and check it is still one declaration of the same kind
+        int sliceStart = tokenizer.getStart(member.first);
+        int sliceEnd = tokenizer.getEnd(member.last) + shift;
+        JackTokenizer slice = new JackTokenizer(newSource.substring(sliceStart, sliceEnd));
+        if ((slice.countTokens() == 0) || (!member.kind.equals(memberKind(slice, 0)))
+                || (findMemberEnd(slice, 0) != slice.countTokens() - 1)) {
+            source = newSource;
+            compileAll();
+            return false;
+        }
+        source = newSource;
+        tokenizer.replaceTokens(member.first, member.last, slice, sliceStart, shift);
+        int tokenShift = slice.countTokens() - (member.last - member.first + 1);
+        member.last = member.first + slice.countTokens() - 1;
+        for (int i = members.indexOf(member) + 1; i < members.size(); i++) {
+            members.get(i).first += tokenShift;
+            members.get(i).last += tokenShift;
+        }
+
+        // re-compile the declaration at its place in the class
+        StringBuilder xml = new StringBuilder();
+        CompilationEngine compile = new CompilationEngine(tokenizer, xml);
+        compile.setIndentation(1);
+        tokenizer.setPosition(member.first);
+        compileMember(compile, member.kind);
+        member.xml = xml.toString();
+        return true;
+    }
+
+    /**
+     * Returns the current Jack source.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the token list of the current source.
+     */
+    public JackTokenizer getTokenizer() {
+        return tokenizer;
+    }
+
+    /**
+     * Returns the xml of the current source.
+     */
+    public String getXml() {
+        StringBuilder out = new StringBuilder();
+        try {
+            writeTo(out);
+        } catch (IOException e) {
+            // a StringBuilder does not throw
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Appends the xml of the current source to out.
+     * @param out destination of the xml
+     * @throws IOException if out fails
+     */
+    public void writeTo(Appendable out) throws IOException {
+        out.append(header);
+        for (Member member : members) {
+            out.append(member.xml);
+        }
+        out.append(footer);
+    }
+
+    /**
+     * Helper method:
+     * tokenizes and compiles the whole source with CompilationEngine.compileClass,
+     * keeping the xml of every declaration apart.
+     */
+    private void compileAll() {
+        tokenizer = new JackTokenizer(source);
+        members = new ArrayList<>();
+        StringBuilder xml = new StringBuilder();
+        // the offsets in xml of the start of the first declaration and the end of the last one
+        int[] bounds = { -1, -1 };
+        CompilationEngine compile = new CompilationEngine(tokenizer, xml);
+        compile.setMemberListener((kind, first, last, memberXml) -> {
+            if (members.isEmpty()) {
+                bounds[0] = xml.length() - memberXml.length();
+            }
+            bounds[1] = xml.length();
+            members.add(new Member(kind, first, last, memberXml));
+        });
+        compile.compileClass();
+        if (members.isEmpty()) {
+            header = xml.toString();
+            footer = "";
+        } else {
+            header = xml.substring(0, bounds[0]);
+            footer = xml.substring(bounds[1]);
+        }
+    }
+
+    /**
+     * Helper method:
+     * compiles the declaration at the current token.
+     */
+    private static void compileMember(CompilationEngine compile, String kind) {
+        if (kind.equals("classVarDec")) {
+            compile.compileClassVarDec();
+        } else {
+            compile.compileSubroutine();
+        }
+    }
+
+    /**
+     * Helper method:
+     * returns the member containing the whole edited range, without touching its
+     * first or last character, or null if there is none.
+     */
+    private Member findEditedMember(int start, int end) {
+        for (Member member : members) {
+            if ((tokenizer.getStart(member.first) < start) && (end < tokenizer.getEnd(member.last))) {
+                return member;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper method:
+     * returns classVarDec or subroutineDec if the token at index starts such a
+     * declaration, null otherwise. The current token is left unchanged.
+     */
+    private static String memberKind(JackTokenizer tokens, int index) {
+        int position = tokens.getPosition();
+        String kind = null;
+        tokens.setPosition(index);
+        if ((index >= 0) && (index < tokens.countTokens()) && tokens.tokenType().equals(TokenType.Keyword)) {
+            String keyword = tokens.Keyword();
+            if (keyword.equals("static") || keyword.equals("field")) {
+                kind = "classVarDec";
+            } else if (keyword.equals("constructor") || keyword.equals("function") || keyword.equals("method")) {
+                kind = "subroutineDec";
+            }
+        }
+        tokens.setPosition(position);
+        return kind;
+    }
+
+    /**
+     * Helper method:
+     * returns the index of the last token of the declaration starting at first -
+     * the ; of a classVarDec or the } closing a subroutine body - or -1 if the
+     * declaration is not closed. The current token is left unchanged.
+     */
+    private static int findMemberEnd(JackTokenizer tokens, int first) {
+        int position = tokens.getPosition();
+        boolean subroutine = "subroutineDec".equals(memberKind(tokens, first));
+        int end = -1;
+        int depth = 0;
+        for (int i = first; (i < tokens.countTokens()) && (end < 0); i++) {
+            tokens.setPosition(i);
+            if (!tokens.tokenType().equals(TokenType.Symbol)) {
+                continue;
+            }
+            if (tokens.Symbol() == '{') {
+                depth++;
+            } else if (tokens.Symbol() == '}') {
+                depth--;
+                if (depth < 0) {
+                    break;
+                }
+                if (subroutine && (depth == 0)) {
+                    end = i;
+                }
+            } else if ((tokens.Symbol() == ';') && (!subroutine) && (depth == 0)) {
+                end = i;
+            }
+        }
+        tokens.setPosition(position);
+        return end;
+    }
+}
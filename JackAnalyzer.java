@@ -1,6 +1,9 @@
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.FileNotFoundException;
+import java.nio.file.Files;
 
 public class JackAnalyzer {
     public static void main(String[] args) {
@@ -33,7 +36,7 @@ public class JackAnalyzer {
             } else {
                 System.out.println("Error: Invalid input");
             }
-        } catch (IOException e) {
+        } catch (IOException | IllegalArgumentException e) {
             System.out.println("ERROR: " + e);
         }
     }
@@ -75,16 +78,27 @@ public class JackAnalyzer {
      * @throws IOException
      */
     public static void translator(File jackFile, File xmlFile) throws FileNotFoundException, IOException {
-        CompilationEngine compile = new CompilationEngine(jackFile, xmlFile);
-        compile.compileClass();
-        compile.close();
+        compileFile(jackFile, xmlFile, JackCompiler.Options.DEFAULT);
     }
 
     public static void translatorT(File jackFile, File xmlFile) throws FileNotFoundException, IOException {
+        compileFile(jackFile, xmlFile, new JackCompiler.Options(JackCompiler.Options.Mode.TOKENS));
+    }
 
-        CompilationEngine compile = new CompilationEngine(jackFile, xmlFile);
-        compile.translatorT();
-        compile.close();
+    /**
+     * This method reads the jack file, compiles it in memory with JackCompiler
+     * and appends the result to the xml file
+     * 
+     * @param jackFile
+     * @param xmlFile
+     * @param options
+     * @throws IOException
+     */
+    private static void compileFile(File jackFile, File xmlFile, JackCompiler.Options options) throws IOException {
+        String source = new String(Files.readAllBytes(jackFile.toPath()), options.getCharset());
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(xmlFile, options.getCharset(), true))) {
+            JackCompiler.compile(source, writer, options);
+        }
     }
 
 }
@@ -0,0 +1,200 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The JackCompiler class compiles Jack source code held in memory, without
+ * going through files on disk.
+ * Every call builds its own tokenizer and compilation engine, so the methods
+ * can be called from several threads at the same time.
+ */
+public final class JackCompiler {
+
+    /**
+     * The options of a compilation.
+     * Options objects are immutable and can be shared between threads.
+     */
+    public static final class Options {
+
+        /**
+         * What the compilation writes.
+         */
+        public enum Mode {
+            // the xml parse tree of the class (compileClass)
+            CLASS,
+            // the flat xml token list (translatorT)
+            TOKENS,
+            // the class without subroutine bodies (compileClassOutline)
+            OUTLINE
+        }
+
+        public static final Options DEFAULT = new Options(Mode.CLASS);
+
+        private final Mode mode;
+        private final Charset charset;
+
+        /**
+         * Creates options with the given mode, reading and writing bytes as UTF-8.
+         * @param mode what the compilation writes
+         */
+        public Options(Mode mode) {
+            this(mode, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Creates options with the given mode and charset.
+         * @param mode    what the compilation writes
+         * @param charset charset used by the byte based overloads
+         */
+        public Options(Mode mode, Charset charset) {
+            this.mode = mode;
+            this.charset = charset;
+        }
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public Charset getCharset() {
+            return charset;
+        }
+    }
+
+    private JackCompiler() {
+    }
+
+    /**
+     * Compiles the given Jack source and appends the xml to out.
+     * @param src the Jack source code
+     * @param out destination of the xml (for example a StringBuilder or a Writer)
+     * @param o   the compilation options
+     * @throws IOException if appending to out fails; out then holds partial xml
+     */
+    public static void compile(CharSequence src, Appendable out, Options o) throws IOException {
+        CompilationEngine compile = new CompilationEngine(new JackTokenizer(src), out);
+        try {
+            switch (o.getMode()) {
+                case CLASS:
+                    compile.compileClass();
+                    break;
+                case TOKENS:
+                    compile.translatorT();
+                    break;
+                case OUTLINE:
+                    compile.compileClassOutline();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported mode: " + o.getMode());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Compiles the outline of the given Jack source - its classVarDecs and
+     * subroutine signatures - and appends the xml to out.
+     * The subroutine bodies are not parsed; the returned outline compiles them
+     * on request with ClassOutline.compileBody.
+     * @param src the Jack source code
+     * @param out destination of the xml
+     * @return the outline of the class
+     * @throws IOException if appending to out fails
+     */
+    public static ClassOutline outline(CharSequence src, Appendable out) throws IOException {
+        CompilationEngine compile = new CompilationEngine(new JackTokenizer(src), out);
+        try {
+            return compile.compileClassOutline();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Assigns the local variables of every subroutine of the given Jack source to
+     * slots of the local segment, letting variables that are never needed at the
+     * same time share a slot (see LocalSlotAllocator).
+     * The compiler only writes xml, so the slots are advisory: nothing uses them
+     * until a VM writer emits the local segment from this map, and the number of
+     * locals of its function command from the largest slot.
+     * @param src the Jack source code
+     * @return for every subroutine name, in source order, the slot of each local
+     */
+    public static Map<String, Map<String, Integer>> allocateLocals(CharSequence src) {
+        JackTokenizer tokenizer = new JackTokenizer(src);
+        CompilationEngine compile = new CompilationEngine(tokenizer, Writer.nullWriter());
+        Map<String, Map<String, Integer>> locals = new LinkedHashMap<>();
+        for (ClassOutline.Subroutine subroutine : compile.compileClassOutline().getSubroutines()) {
+            locals.put(subroutine.getName(), LocalSlotAllocator.allocate(tokenizer, subroutine.getBodyStart()));
+        }
+        return locals;
+    }
+
+    /**
+     * Compiles the given Jack source and returns the xml.
+     * @param src the Jack source code
+     * @param o   the compilation options
+     * @return the xml
+     */
+    public static String compile(CharSequence src, Options o) {
+        StringBuilder out = new StringBuilder();
+        try {
+            compile(src, out, o);
+        } catch (IOException e) {
+            // a StringBuilder does not throw
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Compiles the Jack source encoded in the remaining bytes of src.
+     * The position of src is moved to its limit.
+     * @param src the encoded Jack source code
+     * @param o   the compilation options
+     * @return a new buffer holding the encoded xml, ready to be read
+     */
+    public static ByteBuffer compile(ByteBuffer src, Options o) {
+        CharBuffer source = o.getCharset().decode(src);
+        return o.getCharset().encode(compile(source, o));
+    }
+
+    /**
+     * Reads the Jack source from src until its end and writes the encoded xml to
+     * out. Neither channel is closed.
+     * @param src channel holding the encoded Jack source code
+     * @param out channel receiving the encoded xml
+     * @param o   the compilation options
+     * @throws IOException if reading or writing a channel fails
+     */
+    public static void compile(ReadableByteChannel src, WritableByteChannel out, Options o) throws IOException {
+        ByteBuffer source = ByteBuffer.wrap(Channels.newInputStream(src).readAllBytes());
+        ByteBuffer xml = compile(source, o);
+        while (xml.hasRemaining()) {
+            out.write(xml);
+        }
+    }
+
+    /**
+     * Reads the Jack source from src until its end and writes the encoded xml to
+     * out. Neither stream is closed.
+     * @param src stream holding the encoded Jack source code
+     * @param out stream receiving the encoded xml
+     * @param o   the compilation options
+     * @throws IOException if reading or writing a stream fails
+     */
+    public static void compile(InputStream src, OutputStream out, Options o) throws IOException {
+        compile(Channels.newChannel(src), Channels.newChannel(out), o);
+    }
+}
@@ -1,97 +1,187 @@
 import java.io.File;
-import java.io.FileReader;
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * The JackTokenizer class tokenizes a Jack source file.
  */
 public class JackTokenizer {
-     // Regular expressions for different token types
-    private static final Pattern KEYWORD_REGEX = Pattern.compile("^\\s*(class|constructor|function|method|static|field"
-            + "|var|int|char|boolean|void|true|false|null|this|let|do|if|else|while|return)\\s*");
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList("class", "constructor", "function",
+            "method", "static", "field", "var", "int", "char", "boolean", "void", "true", "false", "null", "this",
+            "let", "do", "if", "else", "while", "return"));
 
-    private static final Pattern SYMBOL_REGEX = Pattern.compile("^\\s*([{}()\\[\\].,;+\\-*/&|<>=~])\\s*");
+    // Character classes of the ASCII characters, used by the scanners
+    static final byte OTHER = 0;
+    static final byte WHITESPACE = 1;
+    static final byte SYMBOL = 2;
+    static final byte DIGIT = 3;
+    static final byte LETTER = 4;
 
-    private static final Pattern DIGIT_REGEX = Pattern.compile("^\\s*(\\d+)\\s*");
+    private static final byte[] CHAR_CLASS = new byte[128];
 
-    private static final Pattern STRING_REGEX = Pattern.compile("^\\s*\"(.*?)\"\\s*");
+    static {
+        for (char c : " \t\n\u000B\f\r".toCharArray()) {
+            CHAR_CLASS[c] = WHITESPACE;
+        }
+        for (char c : "{}()[].,;+-*/&|<>=~".toCharArray()) {
+            CHAR_CLASS[c] = SYMBOL;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CHAR_CLASS[c] = DIGIT;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            CHAR_CLASS[c] = LETTER;
+            CHAR_CLASS[Character.toUpperCase(c)] = LETTER;
+        }
+        CHAR_CLASS['_'] = LETTER;
+    }
 
-    private static final Pattern IDENTIFIER_REGEX = Pattern.compile("^\\s*([a-zA-Z_][a-zA-Z1-9_]*)\\s*");
+    // The scanner of the tokenizers built without one, chosen once at startup
+    private static final CharScanner SCANNER = CharScanner.preferred();
 
-    private File sourceFile;
     private final ArrayList<String> tokens;
     private final ArrayList<TokenType> tokenTypes;
+    // offsets in the source of the first character and of the character after every token
+    private final ArrayList<Integer> starts;
+    private final ArrayList<Integer> ends;
     private int count;
     private int len;
+    private final CharScanner scanner;
 
     /**
-     * Constructs a JackTokenizer object with the specified source file.
+     * Constructs a JackTokenizer object with the specified source file, read as
+     * UTF-8.
      * @param sourceFile the source file to tokenize
      */
     public JackTokenizer(File sourceFile) {
-        this.sourceFile = sourceFile;
         this.tokens = new ArrayList<>();
         this.tokenTypes = new ArrayList<>();
+        this.starts = new ArrayList<>();
+        this.ends = new ArrayList<>();
+        this.count = -1;
+        this.len = 0;
+        this.scanner = SCANNER;
+        try {
+            tokenize(new String(Files.readAllBytes(sourceFile.toPath()), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Constructs a JackTokenizer object over Jack source code held in memory.
+     * @param source the Jack source code to tokenize
+     */
+    public JackTokenizer(CharSequence source) {
+        this(source, SCANNER);
+    }
+
+    /**
+     * Constructs a JackTokenizer object over Jack source code held in memory,
+     * finding the end of character runs with the given scanner.
+     * @param source  the Jack source code to tokenize
+     * @param scanner CharScanner.SCALAR or the Vector API scanner
+     */
+    JackTokenizer(CharSequence source, CharScanner scanner) {
+        this.tokens = new ArrayList<>();
+        this.tokenTypes = new ArrayList<>();
+        this.starts = new ArrayList<>();
+        this.ends = new ArrayList<>();
         this.count = -1;
         this.len = 0;
-        tokenize();
+        this.scanner = scanner;
+        tokenize(source.toString());
     }
 
-     /**
-     * Tokenizes the input Jack source file.
+    /**
+     * Tokenizes the given Jack source.
+     * The source is scanned once from left to right; the runs of whitespace,
+     * comment, digit, word and string characters are skipped by the scanner and
+     * the character starting each token is classified with the CHAR_CLASS table.
+     * @throws IllegalArgumentException if a character cannot start a token, or a
+     *         string constant is not closed
      */
-    private void tokenize() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(sourceFile))) {
-            StringBuilder jackFileBuilder = new StringBuilder();
-            String line;
-            // Read the input Jack file line by line and remove comments
-            while ((line = reader.readLine()) != null) {
-                line = line.split("//")[0].trim();  // Remove comments
-                if (!line.isEmpty() && !line.startsWith("*") && !line.startsWith("/**")) {
-                    jackFileBuilder.append(line);
+    private void tokenize(String source) {
+        char[] text = source.toCharArray();
+        int n = text.length;
+        int i = skipIgnored(text, 0);
+        while (i < n) {
+            char c = text[i];
+            int start = i;
+            byte charClass = classOf(c);
+            if (c == '"') {
+                // string constant - everything up to the closing quote
+                int close = scanner.indexOf(text, '"', i + 1, n);
+                if (close == n) {
+                    throw new IllegalArgumentException("Unterminated string constant at offset " + start);
                 }
+                i = close + 1;
+                tokenTypes.add(TokenType.StringConstant);
+                tokens.add(new String(text, start + 1, close - start - 1));
+            } else if (charClass == SYMBOL) {
+                i++;
+                tokenTypes.add(TokenType.Symbol);
+                tokens.add(String.valueOf(c));
+            } else if (charClass == DIGIT) {
+                i = scanner.skipDigits(text, i + 1, n);
+                tokenTypes.add(TokenType.IntegerConstant);
+                tokens.add(new String(text, start, i - start));
+            } else if (charClass == LETTER) {
+                // keyword or identifier - the longest run of letters, digits and _
+                i = scanner.skipWordChars(text, i + 1, n);
+                String word = new String(text, start, i - start);
+                tokenTypes.add(KEYWORDS.contains(word) ? TokenType.Keyword : TokenType.Identifier);
+                tokens.add(word);
+            } else {
+                throw new IllegalArgumentException("Unexpected character '" + c + "' at offset " + start);
             }
-            // Convert the StringBuilder to a String
-            String jackFile = jackFileBuilder.toString();
-            Matcher matcher;
-            // Tokenize the Jack file
-            while (!jackFile.isEmpty()) {
-                count++;  // Increment the token counter
-            
-                // Try to match the current string with each regular expression
-                if ((matcher = KEYWORD_REGEX.matcher(jackFile)).find()) {
-                    jackFile = matcher.replaceFirst("");  // Remove the matched token from the string
-                    tokenTypes.add(TokenType.Keyword);  // Add the token type to the list
-                    tokens.add(matcher.group(1));  // Add the token value to the list
-                } else if ((matcher = SYMBOL_REGEX.matcher(jackFile)).find()) {
-                    jackFile = matcher.replaceFirst("");
-                    tokenTypes.add(TokenType.Symbol);
-                    tokens.add(matcher.group(1));
-                } else if ((matcher = DIGIT_REGEX.matcher(jackFile)).find()) {
-                    jackFile = matcher.replaceFirst("");
-                    tokenTypes.add(TokenType.IntegerConstant);
-                    tokens.add(matcher.group(1));
-                } else if ((matcher = STRING_REGEX.matcher(jackFile)).find()) {
-                    jackFile = matcher.replaceFirst("");
-                    tokenTypes.add(TokenType.StringConstant);
-                    tokens.add(matcher.group(1));
-                } else if ((matcher = IDENTIFIER_REGEX.matcher(jackFile)).find()) {
-                    jackFile = matcher.replaceFirst("");
-                    tokenTypes.add(TokenType.Identifier);
-                    tokens.add(matcher.group(1));
+            starts.add(start);
+            ends.add(i);
+            i = skipIgnored(text, i);
+        }
+
+        // Set the length of the token list and reset the counter
+        len = tokens.size() - 1;
+        count = -1;
+    }
+
+    /**
+     * Returns the index of the first character at or after i that is not
+     * whitespace or part of a comment.
+     */
+    private int skipIgnored(char[] text, int i) {
+        int n = text.length;
+        while (i < n) {
+            i = scanner.skipWhitespace(text, i, n);
+            if (i + 1 >= n || text[i] != '/') {
+                return i;
+            } else if (text[i + 1] == '/') {
+                // comment until the end of the line
+                i = scanner.indexOf(text, '\n', i + 2, n) + 1;
+            } else if (text[i + 1] == '*') {
+                // comment until closing */ (also covers /** */ doc comments)
+                int star = scanner.indexOf(text, '*', i + 2, n);
+                while (star + 1 < n && text[star + 1] != '/') {
+                    star = scanner.indexOf(text, '*', star + 1, n);
                 }
-            }   
-        
-            // Set the length of the token list and reset the counter
-            len = count;
-            count = -1;
-        } catch (IOException e) {
-            e.printStackTrace();
+                i = star + 2;
+            } else {
+                return i;
+            }
         }
+        return n;
+    }
+
+    /**
+     * Returns the character class of c.
+     */
+    static byte classOf(char c) {
+        return (c < 128) ? CHAR_CLASS[c] : OTHER;
     }
 
     /**
@@ -115,6 +205,77 @@ public class JackTokenizer {
         return tokens.get(count);
     }
 
+    /**
+     * Returns the number of tokens in the token list.
+     * @return the number of tokens
+     */
+    public int countTokens() {
+        return tokens.size();
+    }
+
+    /**
+     * Returns the offset in the source of the first character of a token.
+     * @param index the index of the token in the token list
+     * @return the offset of the token's first character
+     */
+    public int getStart(int index) {
+        return starts.get(index);
+    }
+
+    /**
+     * Returns the offset in the source of the character after a token.
+     * @param index the index of the token in the token list
+     * @return the offset of the character after the token
+     */
+    public int getEnd(int index) {
+        return ends.get(index);
+    }
+
+    /**
+     * Replaces the tokens from first to last (inclusive) with the tokens of
+     * replacement, which was built from the source starting at offset.
+     * The tokens after last are moved by shift characters.
+     * The current token is left unchanged.
+     * @param first       index of the first replaced token
+     * @param last        index of the last replaced token
+     * @param replacement tokenizer over the new source of the replaced tokens
+     * @param offset      offset in the source of replacement's first character
+     * @param shift       the change in the source's length
+     */
+    public void replaceTokens(int first, int last, JackTokenizer replacement, int offset, int shift) {
+        for (int i = last + 1; i < tokens.size(); i++) {
+            starts.set(i, starts.get(i) + shift);
+            ends.set(i, ends.get(i) + shift);
+        }
+        tokens.subList(first, last + 1).clear();
+        tokenTypes.subList(first, last + 1).clear();
+        starts.subList(first, last + 1).clear();
+        ends.subList(first, last + 1).clear();
+        tokens.addAll(first, replacement.tokens);
+        tokenTypes.addAll(first, replacement.tokenTypes);
+        for (int i = 0; i < replacement.tokens.size(); i++) {
+            starts.add(first + i, replacement.starts.get(i) + offset);
+            ends.add(first + i, replacement.ends.get(i) + offset);
+        }
+        len = tokens.size() - 1;
+    }
+
+    /**
+     * Returns the index of the current token in the token list.
+     * @return the index of the current token
+     */
+    public int getPosition() {
+        return count;
+    }
+
+    /**
+     * Moves back or forward to the token at the given index.
+     * @param position an index previously returned by getPosition
+     */
+    public void setPosition(int position) {
+        count = position;
+    }
+
     /**
      * Returns the type of the current token.
      * @return the type of the current token
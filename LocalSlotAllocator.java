@@ -0,0 +1,242 @@
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The LocalSlotAllocator class assigns the local variables of a subroutine to
+ * slots of the local segment.
+ * The subroutine body is parsed by CompilationEngine.compileSubroutineBody,
+ * which reports its varDecs, statements and the variables they read and write
+ * to the allocator. A liveness analysis over those statements finds which
+ * variables can hold a needed value at the same time; variables that never do
+ * share a slot, so the subroutine needs fewer locals.
+ * A variable that is read before it is written keeps the value 0 given by the
+ * function command until it is read, and so does not share its slot with any
+ * variable written before that.
+ * The allocator is used through JackCompiler.allocateLocals.
+ */
+public class LocalSlotAllocator {
+
+    /**
+     * A statement of the subroutine, reduced to what the liveness analysis needs.
+     */
+    private static class Statement {
+        private final String keyword;
+        // the variable written by a let to a plain variable, null otherwise
+        private String def;
+        // the local variables read by the statement's expressions
+        private final Set<String> uses = new HashSet<>();
+        private final List<Statement> body = new ArrayList<>();
+        private final List<Statement> elseBody = new ArrayList<>();
+        // the number of statement lists seen inside the statement
+        private int blocks;
+
+        private Statement(String keyword) {
+            this.keyword = keyword;
+        }
+    }
+
+    private final List<String> locals = new ArrayList<>();
+    private final List<Statement> statements = new ArrayList<>();
+    // the statement lists and the statements being compiled, innermost first
+    private final ArrayDeque<List<Statement>> openLists = new ArrayDeque<>();
+    private final ArrayDeque<Statement> openStatements = new ArrayDeque<>();
+    // for every local, the locals that must not share its slot
+    private final Map<String, Set<String>> interference = new HashMap<>();
+
+    private LocalSlotAllocator() {
+    }
+
+    /**
+     * Assigns a slot to every local variable of a subroutine body.
+     * The body is compiled by CompilationEngine (its xml is discarded), so the
+     * statements analyzed are exactly the ones the engine parses.
+     * The current token of the tokenizer is left unchanged.
+     *
+     * @param tokenizer tokenizer holding the subroutine
+     * @param bodyStart index of the body's opening { in the token list
+     * @return the slot of every local, in declaration order; the subroutine needs
+     *         one more slot than the largest one
+     */
+    static Map<String, Integer> allocate(JackTokenizer tokenizer, int bodyStart) {
+        int position = tokenizer.getPosition();
+        LocalSlotAllocator allocator = new LocalSlotAllocator();
+        CompilationEngine compile = new CompilationEngine(tokenizer, Writer.nullWriter());
+        compile.setLiveness(allocator);
+        tokenizer.setPosition(bodyStart);
+        compile.compileSubroutineBody();
+        tokenizer.setPosition(position);
+        return allocator.allocate();
+    }
+
+    /**
+     * Called by CompilationEngine for every local variable name of a varDec.
+     */
+    void declare(String name) {
+        locals.add(name);
+    }
+
+    /**
+     * Called by CompilationEngine.compileStatements when it starts a statement
+     * list: the subroutine's statements, or a block of the current if or while.
+     */
+    void openStatementList() {
+        if (openStatements.isEmpty()) {
+            openLists.push(statements);
+        } else {
+            // the first block of an if or while is its body, the second the else
+            Statement statement = openStatements.peek();
+            openLists.push((statement.blocks++ == 0) ? statement.body : statement.elseBody);
+        }
+    }
+
+    /**
+     * Called by CompilationEngine.compileStatements at the end of a statement
+     * list.
+     */
+    void closeStatementList() {
+        openLists.pop();
+    }
+
+    /**
+     * Called by CompilationEngine when it starts a let, if, while, do or return
+     * statement of the current statement list.
+     */
+    void openStatement(String keyword) {
+        Statement statement = new Statement(keyword);
+        openLists.peek().add(statement);
+        openStatements.push(statement);
+    }
+
+    /**
+     * Called by CompilationEngine at the end of the current statement.
+     */
+    void closeStatement() {
+        openStatements.pop();
+    }
+
+    /**
+     * Called by CompilationEngine for a variable read by the current statement.
+     */
+    void use(String name) {
+        if (locals.contains(name) && !openStatements.isEmpty()) {
+            openStatements.peek().uses.add(name);
+        }
+    }
+
+    /**
+     * Called by CompilationEngine for the variable written by the current let
+     * statement (not for an array entry).
+     */
+    void define(String name) {
+        if (locals.contains(name) && !openStatements.isEmpty()) {
+            openStatements.peek().def = name;
+        }
+    }
+
+    /**
+     * Helper method:
+     * computes the interference between the locals of the compiled body and
+     * colors them with slots.
+     */
+    private Map<String, Integer> allocate() {
+        for (String local : locals) {
+            interference.put(local, new HashSet<>());
+        }
+
+        // the locals live at the start hold their initial 0 at the same time
+        Set<String> liveIn = this.liveBefore(statements, new HashSet<>());
+        for (String local : liveIn) {
+            this.interfere(local, liveIn);
+        }
+
+        // greedy coloring in declaration order: the lowest slot no neighbour has
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        for (String local : locals) {
+            Set<Integer> taken = new HashSet<>();
+            for (String neighbour : interference.get(local)) {
+                if (slots.containsKey(neighbour)) {
+                    taken.add(slots.get(neighbour));
+                }
+            }
+            int slot = 0;
+            while (taken.contains(slot)) {
+                slot++;
+            }
+            slots.put(local, slot);
+        }
+        return slots;
+    }
+
+    /**
+     * Helper method:
+     * returns the locals live before the statements, given the locals live after
+     * them, and records the interference found on the way.
+     */
+    private Set<String> liveBefore(List<Statement> statements, Set<String> liveOut) {
+        Set<String> live = new HashSet<>(liveOut);
+        for (int i = statements.size() - 1; i >= 0; i--) {
+            Statement statement = statements.get(i);
+            switch (statement.keyword) {
+                case "let":
+                    if (statement.def != null) {
+                        // the written variable must not overwrite a variable still needed
+                        live.remove(statement.def);
+                        this.interfere(statement.def, live);
+                    }
+                    live.addAll(statement.uses);
+                    break;
+                case "do":
+                    live.addAll(statement.uses);
+                    break;
+                case "return":
+                    live = new HashSet<>(statement.uses);
+                    break;
+                case "if":
+                    Set<String> thenIn = this.liveBefore(statement.body, live);
+                    Set<String> elseIn = this.liveBefore(statement.elseBody, live);
+                    live = thenIn;
+                    live.addAll(elseIn);
+                    live.addAll(statement.uses);
+                    break;
+                case "while":
+                    // the condition is evaluated after the loop's exit and after every
+                    // iteration, so iterate until the locals live there stop growing
+                    Set<String> head = new HashSet<>(live);
+                    head.addAll(statement.uses);
+                    while (true) {
+                        Set<String> next = this.liveBefore(statement.body, head);
+                        next.addAll(head);
+                        if (next.equals(head)) {
+                            break;
+                        }
+                        head = next;
+                    }
+                    live = head;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported statement: " + statement.keyword);
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Helper method:
+     * records that local must not share a slot with any of others.
+     */
+    private void interfere(String local, Set<String> others) {
+        for (String other : others) {
+            if (!other.equals(local)) {
+                interference.get(local).add(other);
+                interference.get(other).add(local);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * The ScalarCharScanner class is the CharScanner that looks at one character at
+ * a time, classifying it with the character table of JackTokenizer.
+ */
+final class ScalarCharScanner implements CharScanner {
+
+    @Override
+    public int skipWhitespace(char[] text, int from, int to) {
+        int i = from;
+        while (i < to && JackTokenizer.classOf(text[i]) == JackTokenizer.WHITESPACE) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public int skipDigits(char[] text, int from, int to) {
+        int i = from;
+        while (i < to && JackTokenizer.classOf(text[i]) == JackTokenizer.DIGIT) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public int skipWordChars(char[] text, int from, int to) {
+        int i = from;
+        while (i < to && JackTokenizer.classOf(text[i]) >= JackTokenizer.DIGIT) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public int indexOf(char[] text, char c, int from, int to) {
+        int i = from;
+        while (i < to && text[i] != c) {
+            i++;
+        }
+        return i;
+    }
+}
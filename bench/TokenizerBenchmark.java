@@ -0,0 +1,109 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The TokenizerBenchmark class times JackTokenizer with the scalar scanner and
+ * with the Vector API scanner on a Jack source it generates itself, and checks
+ * that both produce the same tokens.
+ * Usage: java [--add-modules jdk.incubator.vector] -cp . TokenizerBenchmark [subroutines] [runs]
+ * Without the module only the scalar scanner is timed.
+ */
+public class TokenizerBenchmark {
+
+    public static void main(String[] args) {
+        int subroutines = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+        int runs = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        String source = generate(subroutines, new Random(42));
+        System.out.println("source: " + source.length() + " chars, "
+                + new JackTokenizer(source, CharScanner.SCALAR).countTokens() + " tokens");
+
+        CharScanner vector = CharScanner.vector();
+        long scalarTime = time("scalar", source, CharScanner.SCALAR, runs);
+        if (vector == null) {
+            System.out.println("vector: not available (run with --add-modules jdk.incubator.vector"
+                    + " after compiling vector/VectorCharScanner.java)");
+            return;
+        }
+        check(source, vector);
+        long vectorTime = time("vector", source, vector, runs);
+        System.out.printf("speedup: %.2fx%n", (double) scalarTime / vectorTime);
+    }
+
+    /**
+     * Helper method:
+     * tokenizes the source runs times after as many warm-up runs, prints the
+     * median time and returns it in nanoseconds.
+     */
+    private static long time(String name, String source, CharScanner scanner, int runs) {
+        for (int i = 0; i < runs; i++) {
+            new JackTokenizer(source, scanner);
+        }
+        long[] times = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            new JackTokenizer(source, scanner);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        long median = times[runs / 2];
+        System.out.printf("%s: %.2f ms (median of %d runs)%n", name, median / 1e6, runs);
+        return median;
+    }
+
+    /**
+     * Helper method:
+     * throws if the scanner does not produce the tokens of the scalar scanner.
+     */
+    private static void check(String source, CharScanner scanner) {
+        JackTokenizer expected = new JackTokenizer(source, CharScanner.SCALAR);
+        JackTokenizer actual = new JackTokenizer(source, scanner);
+        if (expected.countTokens() != actual.countTokens()) {
+            throw new IllegalStateException("token counts differ: " + expected.countTokens() + " and "
+                    + actual.countTokens());
+        }
+        for (int i = 0; i < expected.countTokens(); i++) {
+            expected.setPosition(i);
+            actual.setPosition(i);
+            if (!expected.getToken().equals(actual.getToken()) || (expected.getEnd(i) != actual.getEnd(i))) {
+                throw new IllegalStateException("token " + i + " differs: " + expected.getToken() + " and "
+                        + actual.getToken());
+            }
+        }
+    }
+
+    /**
+     * Helper method:
+     * returns a class with the given number of subroutines, written like
+     * hand-written Jack: indented, commented, with descriptive names.
+     */
+    private static String generate(int subroutines, Random random) {
+        StringBuilder out = new StringBuilder();
+        out.append("/**\r\n * Generated by TokenizerBenchmark.\r\n */\r\nclass Benchmark {\r\n");
+        out.append("    field int counterValue, previousValue; // the state of the benchmark\r\n\r\n");
+        for (int s = 0; s < subroutines; s++) {
+            String local = "temporaryValue" + s;
+            out.append("    /** Computes the value number ").append(s).append(" of the series. */\r\n");
+            out.append("    method int computeValue").append(s).append("(int firstArgument, int secondArgument) {\r\n");
+            out.append("        var int ").append(local).append(", loopIndex;\r\n");
+            out.append("        var String messageText;\r\n");
+            out.append("        let loopIndex = 0;\r\n");
+            out.append("        let messageText = \"computing the value of the series, step ").append(s)
+                    .append("\";\r\n");
+            out.append("        while (loopIndex < secondArgument) {\r\n");
+            out.append("            // accumulate the arguments into the local value\r\n");
+            out.append("            let ").append(local).append(" = ").append(local).append(" + (firstArgument * ")
+                    .append(random.nextInt(30000)).append(");\r\n");
+            out.append("            let loopIndex = loopIndex + 1;\r\n");
+            out.append("        }\r\n");
+            out.append("        if (").append(local).append(" > counterValue) {\r\n");
+            out.append("            let previousValue = counterValue; /* keep the old maximum */\r\n");
+            out.append("            let counterValue = ").append(local).append(";\r\n");
+            out.append("        }\r\n");
+            out.append("        do Output.printString(messageText);\r\n");
+            out.append("        return ").append(local).append(";\r\n");
+            out.append("    }\r\n\r\n");
+        }
+        out.append("}\r\n");
+        return out.toString();
+    }
+}
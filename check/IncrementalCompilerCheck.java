@@ -0,0 +1,326 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The IncrementalCompilerCheck class checks IncrementalCompiler against a full
+ * compilation. It generates random Jack classes, applies random edits to them
+ * and, after every edit, compares the xml and the token list (with the source
+ * offsets) of the IncrementalCompiler with those of a fresh JackCompiler and
+ * JackTokenizer. It also checks that edits out of the source are rejected.
+ * Usage: java -cp . IncrementalCompilerCheck [classes] [edits] [seed]
+ * Exits with status 1 at the first difference.
+ */
+public class IncrementalCompilerCheck {
+
+    private static final String[] TYPES = { "int", "char", "boolean", "Array", "String" };
+
+    /**
+     * A generated class, kept as its declarations so that every edit leaves a
+     * valid class.
+     */
+    private static class JackClass {
+        private final List<String> classVarDecs = new ArrayList<>();
+        private final List<Subroutine> subroutines = new ArrayList<>();
+
+        private String source() {
+            StringBuilder out = new StringBuilder("class Checked {\r\n");
+            for (String classVarDec : classVarDecs) {
+                out.append("    ").append(classVarDec).append("\r\n");
+            }
+            for (Subroutine subroutine : subroutines) {
+                out.append(subroutine.source());
+            }
+            return out.append("}\r\n").toString();
+        }
+    }
+
+    /**
+     * A generated subroutine: its header, its varDecs and its statements.
+     */
+    private static class Subroutine {
+        private final String header;
+        private final List<String> locals = new ArrayList<>();
+        private final List<String> varDecs = new ArrayList<>();
+        private final List<String> statements = new ArrayList<>();
+
+        private Subroutine(String header) {
+            this.header = header;
+        }
+
+        private String source() {
+            StringBuilder out = new StringBuilder("    ").append(header).append(" {\r\n");
+            for (String varDec : varDecs) {
+                out.append("        ").append(varDec).append("\r\n");
+            }
+            for (String statement : statements) {
+                out.append("        ").append(statement).append("\r\n");
+            }
+            return out.append("    }\r\n").toString();
+        }
+    }
+
+    private final Random random;
+    private int names;
+
+    private IncrementalCompilerCheck(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) {
+        int classes = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+        int edits = (args.length > 1) ? Integer.parseInt(args[1]) : 50;
+        long seed = (args.length > 2) ? Long.parseLong(args[2]) : 1;
+        IncrementalCompilerCheck check = new IncrementalCompilerCheck(seed);
+        int incremental = 0;
+        for (int c = 0; c < classes; c++) {
+            incremental += check.checkClass(edits);
+        }
+        checkBounds();
+        System.out.println("ok: " + classes * edits + " edits, " + incremental + " compiled incrementally");
+    }
+
+    /**
+     * Helper method:
+     * generates a class, edits it the given number of times and checks the
+     * IncrementalCompiler after every edit.
+     * Returns the number of edits that were compiled incrementally.
+     */
+    private int checkClass(int edits) {
+        JackClass jackClass = this.generateClass();
+        String source = jackClass.source();
+        IncrementalCompiler compiler = new IncrementalCompiler(source);
+        compare(compiler, source);
+        int incremental = 0;
+        for (int e = 0; e < edits; e++) {
+            String newSource;
+            if (random.nextInt(4) == 0) {
+                newSource = this.insertComment(compiler, source);
+            } else {
+                this.mutate(jackClass);
+                newSource = jackClass.source();
+            }
+            // the edit is the part between the common prefix and the common suffix
+            int start = 0;
+            while ((start < source.length()) && (start < newSource.length())
+                    && (source.charAt(start) == newSource.charAt(start))) {
+                start++;
+            }
+            int end = source.length();
+            int newEnd = newSource.length();
+            while ((end > start) && (newEnd > start) && (source.charAt(end - 1) == newSource.charAt(newEnd - 1))) {
+                end--;
+                newEnd--;
+            }
+            if (compiler.edit(start, end, newSource.substring(start, newEnd))) {
+                incremental++;
+            }
+            source = newSource;
+            compare(compiler, source);
+        }
+        return incremental;
+    }
+
+    /**
+     * Helper method:
+     * exits if the xml or the tokens of the compiler differ from those of a
+     * full compilation of source.
+     */
+    private static void compare(IncrementalCompiler compiler, String source) {
+        if (!compiler.getSource().equals(source)) {
+            fail("source differs", source);
+        }
+        String xml = JackCompiler.compile(source, JackCompiler.Options.DEFAULT);
+        if (!compiler.getXml().equals(xml)) {
+            fail("xml differs", source);
+        }
+        JackTokenizer expected = new JackTokenizer(source);
+        JackTokenizer actual = compiler.getTokenizer();
+        if (expected.countTokens() != actual.countTokens()) {
+            fail("token count differs", source);
+        }
+        for (int i = 0; i < expected.countTokens(); i++) {
+            expected.setPosition(i);
+            actual.setPosition(i);
+            if (!expected.getToken().equals(actual.getToken()) || (expected.getStart(i) != actual.getStart(i))
+                    || (expected.getEnd(i) != actual.getEnd(i))) {
+                fail("token " + i + " differs", source);
+            }
+        }
+    }
+
+    /**
+     * Helper method:
+     * exits if an edit out of the source is not rejected.
+     */
+    private static void checkBounds() {
+        IncrementalCompiler compiler = new IncrementalCompiler("class Bounds {\r\n}\r\n");
+        int length = compiler.getSource().length();
+        int[][] edits = { { -1, 0 }, { 0, length + 1 }, { 3, 2 }, { length + 1, length + 1 } };
+        for (int[] edit : edits) {
+            try {
+                compiler.edit(edit[0], edit[1], "");
+                fail("edit " + edit[0] + ".." + edit[1] + " was not rejected", compiler.getSource());
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        compiler.edit(length, length, "");
+        compare(compiler, "class Bounds {\r\n}\r\n");
+    }
+
+    private static void fail(String message, String source) {
+        System.out.println("FAILED: " + message + "\n" + source);
+        System.exit(1);
+    }
+
+    /**
+     * Helper method:
+     * returns source with a comment inserted before a random token.
+     */
+    private String insertComment(IncrementalCompiler compiler, String source) {
+        JackTokenizer tokens = compiler.getTokenizer();
+        int at = tokens.getStart(random.nextInt(tokens.countTokens()));
+        String comment = random.nextBoolean() ? "/* note */ " : "// note\r\n";
+        return source.substring(0, at) + comment + source.substring(at);
+    }
+
+    /**
+     * Helper method:
+     * applies a random change to one declaration of the class, or adds or
+     * removes a declaration.
+     */
+    private void mutate(JackClass jackClass) {
+        int choice = random.nextInt(10);
+        if ((choice == 0) || jackClass.subroutines.isEmpty()) {
+            jackClass.subroutines.add(random.nextInt(jackClass.subroutines.size() + 1), this.generateSubroutine());
+        } else if (choice == 1) {
+            jackClass.subroutines.remove(random.nextInt(jackClass.subroutines.size()));
+        } else if (choice == 2) {
+            jackClass.classVarDecs.add(random.nextInt(jackClass.classVarDecs.size() + 1), this.generateClassVarDec());
+        } else if ((choice == 3) && !jackClass.classVarDecs.isEmpty()) {
+            int index = random.nextInt(jackClass.classVarDecs.size());
+            jackClass.classVarDecs.set(index, this.generateClassVarDec());
+        } else {
+            Subroutine subroutine = jackClass.subroutines.get(random.nextInt(jackClass.subroutines.size()));
+            List<String> statements = subroutine.statements;
+            int index = random.nextInt(statements.size());
+            if ((choice == 4) && (statements.size() > 1)) {
+                statements.remove(index);
+            } else if (choice == 5) {
+                statements.add(index, this.generateStatement(subroutine.locals, 2));
+            } else if (choice == 6) {
+                String local = this.name();
+                subroutine.locals.add(local);
+                subroutine.varDecs.add("var " + this.type() + " " + local + ";");
+            } else {
+                statements.set(index, this.generateStatement(subroutine.locals, 2));
+            }
+        }
+    }
+
+    private JackClass generateClass() {
+        JackClass jackClass = new JackClass();
+        for (int i = random.nextInt(4); i > 0; i--) {
+            jackClass.classVarDecs.add(this.generateClassVarDec());
+        }
+        for (int i = 1 + random.nextInt(4); i > 0; i--) {
+            jackClass.subroutines.add(this.generateSubroutine());
+        }
+        return jackClass;
+    }
+
+    private String generateClassVarDec() {
+        StringBuilder out = new StringBuilder(random.nextBoolean() ? "static " : "field ");
+        out.append(this.type()).append(" ").append(this.name());
+        for (int i = random.nextInt(3); i > 0; i--) {
+            out.append(", ").append(this.name());
+        }
+        return out.append(";").toString();
+    }
+
+    private Subroutine generateSubroutine() {
+        String[] kinds = { "constructor", "function", "method" };
+        StringBuilder header = new StringBuilder(kinds[random.nextInt(kinds.length)]);
+        header.append(random.nextBoolean() ? " void " : " " + this.type() + " ").append(this.name()).append("(");
+        for (int i = random.nextInt(3); i > 0; i--) {
+            header.append(this.type()).append(" ").append(this.name()).append((i > 1) ? ", " : "");
+        }
+        Subroutine subroutine = new Subroutine(header.append(")").toString());
+        // at least one local, so every let has a variable to write
+        for (int i = 1 + random.nextInt(2); i > 0; i--) {
+            String local = this.name();
+            subroutine.locals.add(local);
+            subroutine.varDecs.add("var " + this.type() + " " + local + ";");
+        }
+        for (int i = random.nextInt(4); i > 0; i--) {
+            subroutine.statements.add(this.generateStatement(subroutine.locals, 2));
+        }
+        subroutine.statements.add("return;");
+        return subroutine;
+    }
+
+    private String generateStatement(List<String> locals, int depth) {
+        int choice = random.nextInt((depth > 0) ? 5 : 3);
+        switch (choice) {
+            case 0:
+                return "let " + this.variable(locals) + " = " + this.generateExpression(locals, 2) + ";";
+            case 1:
+                return "let " + this.variable(locals) + "[" + this.generateExpression(locals, 1) + "] = "
+                        + this.generateExpression(locals, 2) + ";";
+            case 2:
+                return "do Output.printInt(" + this.generateExpression(locals, 2) + ");";
+            case 3:
+                return "if (" + this.generateExpression(locals, 2) + ") { "
+                        + this.generateStatement(locals, depth - 1) + " } else { "
+                        + this.generateStatement(locals, depth - 1) + " }";
+            default:
+                return "while (" + this.generateExpression(locals, 2) + ") { "
+                        + this.generateStatement(locals, depth - 1) + " }";
+        }
+    }
+
+    private String generateExpression(List<String> locals, int depth) {
+        String[] ops = { "+", "-", "*", "/", "&", "|", "<", ">", "=" };
+        StringBuilder out = new StringBuilder(this.generateTerm(locals, depth));
+        for (int i = random.nextInt(3); i > 0; i--) {
+            out.append(" ").append(ops[random.nextInt(ops.length)]).append(" ").append(this.generateTerm(locals, depth));
+        }
+        return out.toString();
+    }
+
+    private String generateTerm(List<String> locals, int depth) {
+        int choice = random.nextInt((depth > 0) ? 8 : 4);
+        switch (choice) {
+            case 0:
+                return String.valueOf(random.nextInt(32768));
+            case 1:
+                return "\"text " + random.nextInt(100) + "\"";
+            case 2:
+                return random.nextBoolean() ? "true" : "null";
+            case 3:
+                return this.variable(locals);
+            case 4:
+                return "(" + this.generateExpression(locals, depth - 1) + ")";
+            case 5:
+                return (random.nextBoolean() ? "-" : "~") + this.generateTerm(locals, depth - 1);
+            case 6:
+                return this.variable(locals) + "[" + this.generateExpression(locals, depth - 1) + "]";
+            default:
+                return "Math.max(" + this.generateExpression(locals, depth - 1) + ", "
+                        + this.generateExpression(locals, depth - 1) + ")";
+        }
+    }
+
+    private String variable(List<String> locals) {
+        return locals.get(random.nextInt(locals.size()));
+    }
+
+    private String type() {
+        return TYPES[random.nextInt(TYPES.length)];
+    }
+
+    private String name() {
+        return "name" + (names++);
+    }
+}
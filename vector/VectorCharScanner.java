@@ -0,0 +1,86 @@
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The VectorCharScanner class is the CharScanner of the Vector API.
+ * It loads SPECIES_PREFERRED.length() characters at a time, computes in one
+ * mask which of them end the run, and takes the first one; the characters
+ * after the last whole vector are left to CharScanner.SCALAR.
+ * The class needs the jdk.incubator.vector module to compile and to run, so it
+ * is kept apart from the other classes and only loaded by
+ * CharScanner.vector() when the module is present (see README.md).
+ */
+final class VectorCharScanner implements CharScanner {
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    @Override
+    public int skipWhitespace(char[] text, int from, int to) {
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, text, i);
+            // space, or \t \n \u000B \f \r
+            VectorMask<Short> whitespace = chars.eq((short) ' ')
+                    .or(inRange(chars, '\t', '\r'));
+            int end = whitespace.not().firstTrue();
+            if (end < SPECIES.length()) {
+                return i + end;
+            }
+        }
+        return SCALAR.skipWhitespace(text, i, to);
+    }
+
+    @Override
+    public int skipDigits(char[] text, int from, int to) {
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, text, i);
+            int end = inRange(chars, '0', '9').not().firstTrue();
+            if (end < SPECIES.length()) {
+                return i + end;
+            }
+        }
+        return SCALAR.skipDigits(text, i, to);
+    }
+
+    @Override
+    public int skipWordChars(char[] text, int from, int to) {
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, text, i);
+            // setting bit 5 turns A-Z into a-z and leaves a-z unchanged
+            VectorMask<Short> word = inRange(chars.or((short) 0x20), 'a', 'z')
+                    .or(inRange(chars, '0', '9'))
+                    .or(chars.eq((short) '_'));
+            int end = word.not().firstTrue();
+            if (end < SPECIES.length()) {
+                return i + end;
+            }
+        }
+        return SCALAR.skipWordChars(text, i, to);
+    }
+
+    @Override
+    public int indexOf(char[] text, char c, int from, int to) {
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, text, i);
+            int found = chars.eq((short) c).firstTrue();
+            if (found < SPECIES.length()) {
+                return i + found;
+            }
+        }
+        return SCALAR.indexOf(text, c, i, to);
+    }
+
+    /**
+     * Helper method:
+     * returns the mask of the characters from low to high. Characters from
+     * 0x8000 up are negative shorts and never in range, as for the table of
+     * JackTokenizer, which only classifies ASCII.
+     */
+    private static VectorMask<Short> inRange(ShortVector chars, char low, char high) {
+        return chars.compare(VectorOperators.GE, (short) low).and(chars.compare(VectorOperators.LE, (short) high));
+    }
+}